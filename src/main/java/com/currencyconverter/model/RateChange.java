@@ -0,0 +1,78 @@
+package com.currencyconverter.model;
+
+/**
+ * Representa la variación de la tasa de una moneda entre dos actualizaciones consecutivas.
+ * Si la moneda no tenía tasa anterior, {@code previousRate} es NaN y el cambio es un valor inicial.
+ */
+public class RateChange {
+    private final Currency currency;
+    private final double previousRate;
+    private final double currentRate;
+    private final String lastUpdated;
+
+    public RateChange(Currency currency, double previousRate, double currentRate, String lastUpdated) {
+        this.currency = currency;
+        this.previousRate = previousRate;
+        this.currentRate = currentRate;
+        this.lastUpdated = lastUpdated;
+    }
+
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    public double getPreviousRate() {
+        return previousRate;
+    }
+
+    public double getCurrentRate() {
+        return currentRate;
+    }
+
+    public String getLastUpdated() {
+        return lastUpdated;
+    }
+
+    /**
+     * Indica si el cambio es el primer valor conocido de la moneda.
+     *
+     * @return true si no había tasa anterior
+     */
+    public boolean isInitial() {
+        return Double.isNaN(previousRate);
+    }
+
+    /**
+     * Obtiene la diferencia absoluta entre la tasa actual y la anterior.
+     *
+     * @return tasa actual menos tasa anterior, o NaN si es un valor inicial
+     */
+    public double getDelta() {
+        return currentRate - previousRate;
+    }
+
+    /**
+     * Obtiene la variación relativa respecto a la tasa anterior.
+     *
+     * @return variación relativa (0.01 equivale a un 1%), infinita si es un valor inicial
+     */
+    public double getRelativeChange() {
+        if (isInitial()) {
+            return Double.POSITIVE_INFINITY;
+        }
+        if (previousRate == 0) {
+            return currentRate == 0 ? 0 : Double.POSITIVE_INFINITY;
+        }
+        return Math.abs(getDelta() / previousRate);
+    }
+
+    @Override
+    public String toString() {
+        return "RateChange{" +
+                "currency=" + currency.getCode() +
+                ", previousRate=" + previousRate +
+                ", currentRate=" + currentRate +
+                ", lastUpdated='" + lastUpdated + '\'' +
+                '}';
+    }
+}
@@ -3,29 +3,94 @@ package com.currencyconverter.service;
 import com.currencyconverter.api.ExchangeRateClient;
 import com.currencyconverter.model.Currency;
 import com.currencyconverter.model.ExchangeRateResponse;
+import com.currencyconverter.model.RateChange;
 
 import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Clase de servicio responsable de las operaciones de conversión de moneda.
  */
 public class CurrencyConverterService {
+    private static final int FAST_DELIVERY_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private static final int SLOW_DELIVERY_THREADS = 2;
+    
     private final ExchangeRateClient apiClient;
-    private Map<String, Double> rates;
-    private String lastUpdated;
+    private volatile RateSnapshot snapshot;
     private final DecimalFormat decimalFormat;
+    private final Object refreshLock;
+    private final ExecutorService fastDeliveryExecutor;
+    private final ExecutorService slowDeliveryExecutor;
+    private final Set<RateChangeSubscription> subscriptions;
+    private final LongAdder conflatedRateChanges;
+    private boolean closed;
     
     public CurrencyConverterService() {
-        this.apiClient = new ExchangeRateClient();
-        this.rates = new HashMap<>();
+        this(new ExchangeRateClient());
+    }
+    
+    /**
+     * Crea el servicio con un cliente de API específico y carga las tasas iniciales.
+     * 
+     * @param apiClient cliente usado para obtener las tasas
+     */
+    public CurrencyConverterService(ExchangeRateClient apiClient) {
+        this.apiClient = apiClient;
+        this.snapshot = new RateSnapshot(Collections.emptyMap(), null, Long.MIN_VALUE);
         this.decimalFormat = new DecimalFormat("#,##0.00");
+        this.refreshLock = new Object();
+        this.fastDeliveryExecutor = Executors.newFixedThreadPool(FAST_DELIVERY_THREADS,
+                deliveryThreadFactory("rate-change-fast-"));
+        this.slowDeliveryExecutor = Executors.newFixedThreadPool(SLOW_DELIVERY_THREADS,
+                deliveryThreadFactory("rate-change-slow-"));
+        this.subscriptions = new HashSet<>();
+        this.conflatedRateChanges = new LongAdder();
         this.fetchLatestRates();
     }
     
+    private static ThreadFactory deliveryThreadFactory(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+    
+    /**
+     * Instantánea inmutable de las tasas junto con la marca de tiempo a la que corresponden.
+     */
+    private static final class RateSnapshot {
+        private final Map<String, Double> rates;
+        private final String lastUpdated;
+        private final long lastUpdatedUnix;
+        
+        RateSnapshot(Map<String, Double> rates, String lastUpdated, long lastUpdatedUnix) {
+            this.rates = Collections.unmodifiableMap(rates);
+            this.lastUpdated = lastUpdated;
+            this.lastUpdatedUnix = lastUpdatedUnix;
+        }
+    }
+    
     /**
      * Obtiene las tasas de cambio más recientes desde la API.
+     * La lectura de la instantánea anterior, el cálculo de cambios, el reemplazo y la
+     * publicación se hacen de forma atómica, para que dos actualizaciones concurrentes
+     * no publiquen cambios duplicados ni contradictorios. Como la solicitud a la API se hace
+     * fuera del bloqueo, una respuesta cuya marca de tiempo no sea posterior a la de las
+     * tasas actuales se descarta, para que una respuesta atrasada no reemplace a una más nueva.
      * 
      * @return true si las tasas se obtuvieron con éxito, false en caso contrario
      */
@@ -33,14 +98,175 @@ public class CurrencyConverterService {
         ExchangeRateResponse response = apiClient.getLatestRates();
         
         if (response != null && response.getConversion_rates() != null) {
-            this.rates = filterSupportedRates(response.getConversion_rates());
-            this.lastUpdated = response.getTime_last_update_utc();
+            Map<String, Double> currentRates = filterSupportedRates(response.getConversion_rates());
+            String lastUpdated = response.getTime_last_update_utc();
+            long lastUpdatedUnix = response.getTime_last_update_unix();
+            
+            synchronized (refreshLock) {
+                if (lastUpdatedUnix <= snapshot.lastUpdatedUnix) {
+                    return true;
+                }
+                Map<String, Double> previousRates = snapshot.rates;
+                snapshot = new RateSnapshot(currentRates, lastUpdated, lastUpdatedUnix);
+                publishRateChanges(diffRates(previousRates, currentRates, lastUpdated));
+            }
             return true;
         }
         
         return false;
     }
     
+    /**
+     * Calcula los cambios por moneda entre dos instantáneas consecutivas de tasas.
+     * Una moneda sin tasa anterior (primera carga o moneda que reaparece) se incluye
+     * como valor inicial con {@code previousRate} igual a NaN.
+     * 
+     * @param previousRates tasas anteriores
+     * @param currentRates tasas recién obtenidas
+     * @param lastUpdated marca de tiempo de las tasas recién obtenidas
+     * @return lista de cambios, vacía si no hubo variaciones
+     */
+    static List<RateChange> diffRates(Map<String, Double> previousRates, Map<String, Double> currentRates,
+                                      String lastUpdated) {
+        List<RateChange> changes = new ArrayList<>();
+        
+        for (Currency currency : Currency.values()) {
+            Double previousRate = previousRates.get(currency.getCode());
+            Double currentRate = currentRates.get(currency.getCode());
+            if (currentRate == null) {
+                continue;
+            }
+            if (previousRate == null) {
+                changes.add(new RateChange(currency, Double.NaN, currentRate, lastUpdated));
+            } else if (Double.compare(previousRate, currentRate) != 0) {
+                changes.add(new RateChange(currency, previousRate, currentRate, lastUpdated));
+            }
+        }
+        
+        return changes;
+    }
+    
+    /**
+     * Entrega los cambios al búfer de cada suscripción sin invocar a los suscriptores,
+     * por lo que un suscriptor lento nunca bloquea la actualización.
+     * Debe llamarse con {@code refreshLock} tomado.
+     * 
+     * @param changes cambios a publicar
+     */
+    private void publishRateChanges(List<RateChange> changes) {
+        if (changes.isEmpty() || closed) {
+            return;
+        }
+        
+        for (RateChangeSubscription subscription : subscriptions) {
+            subscription.offer(changes);
+        }
+    }
+    
+    /**
+     * Suscribe un oyente a los cambios de tasas producidos en cada actualización.
+     * Solo se publican las monedas cuya tasa varió respecto a la última tasa entregada
+     * a este suscriptor. Si el suscriptor no consume a tiempo, cada moneda pendiente se
+     * reemplaza por su cambio más reciente en lugar de descartarse.
+     * Si una moneda no tenía tasa previa (por ejemplo, porque la carga inicial falló),
+     * se publica como valor inicial: {@link RateChange#isInitial()} devuelve true.
+     * Las tasas ya cargadas al momento de suscribirse no se reenvían; use {@link #getRates()}.
+     * 
+     * @param subscriber el suscriptor que recibirá cada {@link RateChange}
+     */
+    public void subscribeToRateChanges(Flow.Subscriber<? super RateChange> subscriber) {
+        subscribeToRateChanges(subscriber, 0);
+    }
+    
+    /**
+     * Suscribe un oyente que solo recibe los cambios cuya variación relativa, medida
+     * desde la última tasa que recibió, alcanza el umbral indicado. Los valores
+     * iniciales se entregan siempre.
+     * Ver {@link #subscribeToRateChanges(Flow.Subscriber)}.
+     * 
+     * @param subscriber el suscriptor que recibirá cada {@link RateChange}
+     * @param minRelativeChange variación relativa mínima (0.01 equivale a un 1%)
+     */
+    public void subscribeToRateChanges(Flow.Subscriber<? super RateChange> subscriber, double minRelativeChange) {
+        if (!Double.isFinite(minRelativeChange) || minRelativeChange < 0) {
+            throw new IllegalArgumentException("El umbral debe ser finito y mayor o igual a cero: " + minRelativeChange);
+        }
+        // Suma 0.0 para convertir -0.0 en 0.0
+        double threshold = minRelativeChange + 0.0;
+        
+        synchronized (refreshLock) {
+            if (closed) {
+                throw new IllegalStateException("El servicio de tasas ya fue cerrado");
+            }
+            RateChangeSubscription subscription = new RateChangeSubscription(subscriber, threshold,
+                    snapshot.rates, fastDeliveryExecutor, slowDeliveryExecutor, conflatedRateChanges,
+                    this::removeSubscription);
+            subscriptions.add(subscription);
+            subscription.start();
+        }
+    }
+    
+    /**
+     * Quita una suscripción cancelada o terminada. Tras el cierre, detiene los hilos de
+     * entrega cuando ya no queda ninguna suscripción con cambios por entregar.
+     * 
+     * @param subscription la suscripción que terminó
+     */
+    private void removeSubscription(RateChangeSubscription subscription) {
+        synchronized (refreshLock) {
+            subscriptions.remove(subscription);
+            if (closed && subscriptions.isEmpty()) {
+                shutdownDeliveryExecutors();
+            }
+        }
+    }
+    
+    private void shutdownDeliveryExecutors() {
+        fastDeliveryExecutor.shutdown();
+        slowDeliveryExecutor.shutdown();
+    }
+    
+    /**
+     * Obtiene la cantidad de cambios pendientes que fueron reemplazados por uno más reciente
+     * de la misma moneda antes de que el suscriptor los consumiera.
+     * 
+     * @return total de cambios reemplazados
+     */
+    public long getConflatedRateChanges() {
+        return conflatedRateChanges.sum();
+    }
+    
+    /**
+     * Obtiene la cantidad de suscripciones activas.
+     * 
+     * @return suscripciones que aún no fueron canceladas ni completadas
+     */
+    int getSubscriptionCount() {
+        synchronized (refreshLock) {
+            return subscriptions.size();
+        }
+    }
+    
+    /**
+     * Deja de aceptar suscripciones y notifica onComplete a cada suscriptor después de
+     * entregarle sus cambios pendientes, respetando su demanda. Los hilos de entrega se
+     * detienen cuando el último suscriptor termina.
+     */
+    public void close() {
+        synchronized (refreshLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            for (RateChangeSubscription subscription : subscriptions) {
+                subscription.complete();
+            }
+            if (subscriptions.isEmpty()) {
+                shutdownDeliveryExecutors();
+            }
+        }
+    }
+    
     /**
      * Filtra la respuesta de la API para incluir solo tasas de monedas soportadas.
      * 
@@ -69,12 +295,14 @@ public class CurrencyConverterService {
      * @return la cantidad convertida o -1 si la conversión falló
      */
     public double convert(Currency fromCurrency, Currency toCurrency, double amount) {
-        if (rates.isEmpty()) {
+        if (snapshot.rates.isEmpty()) {
             if (!fetchLatestRates()) {
                 return -1;
             }
         }
         
+        Map<String, Double> rates = snapshot.rates;
+        
         // Obtiene las tasas para ambas monedas (relativas al USD)
         Double fromRate = rates.get(fromCurrency.getCode());
         Double toRate = rates.get(toCurrency.getCode());
@@ -108,10 +336,10 @@ public class CurrencyConverterService {
     /**
      * Obtiene todas las tasas de cambio disponibles.
      * 
-     * @return mapa de códigos de moneda a sus tasas
+     * @return mapa inmutable de códigos de moneda a sus tasas
      */
     public Map<String, Double> getRates() {
-        return rates;
+        return snapshot.rates;
     }
     
     /**
@@ -120,6 +348,6 @@ public class CurrencyConverterService {
      * @return marca de tiempo de la última actualización
      */
     public String getLastUpdated() {
-        return lastUpdated;
+        return snapshot.lastUpdated;
     }
 }
\ No newline at end of file
@@ -0,0 +1,262 @@
+package com.currencyconverter.service;
+
+import com.currencyconverter.model.Currency;
+import com.currencyconverter.model.RateChange;
+
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Suscripción de un único suscriptor a los cambios de tasas.
+ * El búfer guarda solo el último cambio pendiente por moneda, por lo que un suscriptor lento
+ * recibe la tasa más reciente en lugar de perder cambios. El umbral se compara con la última
+ * tasa entregada a este suscriptor, de modo que los movimientos pequeños acumulados también
+ * terminan notificándose. Los suscriptores cuyo onNext tarda más de
+ * {@link #SLOW_CONSUMER_NANOS} se entregan en un ejecutor aparte para no retrasar al resto.
+ */
+class RateChangeSubscription implements Flow.Subscription {
+    static final long SLOW_CONSUMER_NANOS = TimeUnit.MICROSECONDS.toNanos(500);
+
+    private final Flow.Subscriber<? super RateChange> subscriber;
+    private final double minRelativeChange;
+    private final Executor fastExecutor;
+    private final Executor slowExecutor;
+    private final LongAdder conflatedRateChanges;
+    private final Consumer<RateChangeSubscription> onTerminate;
+
+    // Protegidos por el monitor de la suscripción
+    private final Map<Currency, Double> referenceRates;
+    private final Map<Currency, RateChange> pending;
+    private long demand;
+    private boolean draining;
+    private boolean completing;
+    private boolean terminated;
+    private Throwable error;
+
+    // Solo se usan desde el hilo que está drenando
+    private boolean started;
+    private volatile boolean slow;
+
+    RateChangeSubscription(Flow.Subscriber<? super RateChange> subscriber, double minRelativeChange,
+                           Map<String, Double> currentRates, Executor fastExecutor, Executor slowExecutor,
+                           LongAdder conflatedRateChanges, Consumer<RateChangeSubscription> onTerminate) {
+        this.subscriber = subscriber;
+        this.minRelativeChange = minRelativeChange;
+        this.fastExecutor = fastExecutor;
+        this.slowExecutor = slowExecutor;
+        this.conflatedRateChanges = conflatedRateChanges;
+        this.onTerminate = onTerminate;
+        this.referenceRates = new EnumMap<>(Currency.class);
+        this.pending = new LinkedHashMap<>();
+
+        for (Map.Entry<String, Double> entry : currentRates.entrySet()) {
+            Currency currency = Currency.getByCode(entry.getKey());
+            if (currency != null) {
+                referenceRates.put(currency, entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Programa la llamada a onSubscribe en el hilo de entrega.
+     */
+    synchronized void start() {
+        scheduleDrain();
+    }
+
+    /**
+     * Incorpora los cambios de una actualización al búfer. Nunca invoca al suscriptor
+     * ni bloquea al hilo que actualiza las tasas.
+     *
+     * @param changes cambios respecto a la actualización anterior
+     */
+    synchronized void offer(List<RateChange> changes) {
+        if (completing || terminated) {
+            return;
+        }
+
+        boolean added = false;
+        for (RateChange change : changes) {
+            Currency currency = change.getCurrency();
+            Double referenceRate = referenceRates.get(currency);
+            double currentRate = change.getCurrentRate();
+            RateChange candidate = new RateChange(currency,
+                    referenceRate == null ? Double.NaN : referenceRate, currentRate, change.getLastUpdated());
+
+            if ((referenceRate == null || Double.compare(referenceRate, currentRate) != 0)
+                    && candidate.getRelativeChange() >= minRelativeChange) {
+                if (pending.put(currency, candidate) != null) {
+                    conflatedRateChanges.increment();
+                }
+                added = true;
+            } else if (pending.remove(currency) != null) {
+                // La tasa volvió dentro del umbral respecto a lo que el suscriptor ya conoce
+                conflatedRateChanges.increment();
+            }
+        }
+
+        if (added) {
+            scheduleDrain();
+        }
+    }
+
+    /**
+     * Marca la suscripción para completarse cuando se hayan entregado los cambios pendientes.
+     */
+    synchronized void complete() {
+        if (terminated) {
+            return;
+        }
+        completing = true;
+        scheduleDrain();
+    }
+
+    @Override
+    public void request(long n) {
+        synchronized (this) {
+            if (terminated) {
+                return;
+            }
+            if (n <= 0) {
+                error = new IllegalArgumentException("La demanda debe ser positiva: " + n);
+                pending.clear();
+            } else {
+                demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                if (pending.isEmpty() && !completing) {
+                    return;
+                }
+            }
+            scheduleDrain();
+        }
+    }
+
+    @Override
+    public void cancel() {
+        synchronized (this) {
+            if (terminated) {
+                return;
+            }
+            terminated = true;
+            pending.clear();
+        }
+        onTerminate.accept(this);
+    }
+
+    /**
+     * Debe llamarse con el monitor tomado.
+     */
+    private void scheduleDrain() {
+        if (draining) {
+            return;
+        }
+        draining = true;
+        try {
+            (slow ? slowExecutor : fastExecutor).execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            // Los ejecutores solo se detienen cuando ya no quedan suscripciones activas
+            draining = false;
+            terminated = true;
+            pending.clear();
+        }
+    }
+
+    /**
+     * Entrega las señales pendientes en orden. Solo un hilo drena a la vez.
+     */
+    private void drain() {
+        if (!started) {
+            started = true;
+            try {
+                subscriber.onSubscribe(this);
+            } catch (Throwable t) {
+                fail(t);
+                return;
+            }
+        }
+
+        while (true) {
+            RateChange next = null;
+            Throwable failure = null;
+
+            synchronized (this) {
+                if (terminated) {
+                    draining = false;
+                    return;
+                }
+                if (error != null) {
+                    failure = error;
+                } else if (!pending.isEmpty() && demand > 0) {
+                    Iterator<RateChange> iterator = pending.values().iterator();
+                    next = iterator.next();
+                    iterator.remove();
+                    referenceRates.put(next.getCurrency(), next.getCurrentRate());
+                    if (demand != Long.MAX_VALUE) {
+                        demand--;
+                    }
+                } else if (!pending.isEmpty() || !completing) {
+                    draining = false;
+                    return;
+                }
+
+                if (next == null) {
+                    terminated = true;
+                    draining = false;
+                }
+            }
+
+            if (failure != null) {
+                subscriber.onError(failure);
+                onTerminate.accept(this);
+                return;
+            }
+            if (next == null) {
+                subscriber.onComplete();
+                onTerminate.accept(this);
+                return;
+            }
+
+            long start = System.nanoTime();
+            try {
+                subscriber.onNext(next);
+            } catch (Throwable t) {
+                fail(t);
+                return;
+            }
+
+            boolean wasSlow = slow;
+            slow = System.nanoTime() - start > SLOW_CONSUMER_NANOS;
+            if (slow != wasSlow) {
+                // Continúa en el ejecutor que corresponde a la nueva velocidad del suscriptor
+                synchronized (this) {
+                    draining = false;
+                    if (!terminated) {
+                        scheduleDrain();
+                    }
+                }
+                return;
+            }
+        }
+    }
+
+    private void fail(Throwable t) {
+        synchronized (this) {
+            if (terminated) {
+                return;
+            }
+            terminated = true;
+            draining = false;
+            pending.clear();
+        }
+        subscriber.onError(t);
+        onTerminate.accept(this);
+    }
+}
@@ -35,6 +35,7 @@ public class ConsoleMenu {
         
         // Clean up resources
         scanner.close();
+        converterService.close();
         System.out.println("\nGracias por usar el Conversor de Moneda. ¡Hasta pronto!");
     }
     
@@ -0,0 +1,202 @@
+package com.currencyconverter.bench;
+
+import com.currencyconverter.api.ExchangeRateClient;
+import com.currencyconverter.model.Currency;
+import com.currencyconverter.model.ExchangeRateResponse;
+import com.currencyconverter.model.RateChange;
+import com.currencyconverter.service.CurrencyConverterService;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Mide el reparto de cambios de tasas a miles de suscriptores sin llamar a la API real.
+ * Los resultados se informan por separado para suscriptores rápidos y lentos.
+ *
+ * Uso: mvn test-compile
+ *      java -cp target/classes:target/test-classes:&lt;gson.jar&gt;
+ *      com.currencyconverter.bench.RateChangeFanOutBenchmark
+ *      [suscriptores] [actualizaciones] [fracción lentos] [retardo lento ms]
+ */
+public class RateChangeFanOutBenchmark {
+    private static final double[] THRESHOLDS = {0, 0.001, 0.01};
+
+    public static void main(String[] args) throws InterruptedException {
+        int subscribers = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int refreshes = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        double slowFraction = args.length > 2 ? Double.parseDouble(args[2]) : 0.1;
+        long slowDelayMillis = args.length > 3 ? Long.parseLong(args[3]) : 1;
+
+        long[] publishTimes = new long[refreshes + 2];
+        CurrencyConverterService service = new CurrencyConverterService(new RandomWalkClient(42));
+        CountDownLatch completed = new CountDownLatch(subscribers);
+        GroupStats fast = new GroupStats();
+        GroupStats slow = new GroupStats();
+        CountingSubscriber[] all = new CountingSubscriber[subscribers];
+        int slowEvery = slowFraction > 0 ? (int) Math.max(1, Math.round(1 / slowFraction)) : 0;
+
+        for (int i = 0; i < subscribers; i++) {
+            boolean isSlow = slowEvery > 0 && i % slowEvery == 0;
+            double threshold = THRESHOLDS[i % THRESHOLDS.length];
+            all[i] = new CountingSubscriber(isSlow ? slow : fast, completed, isSlow ? slowDelayMillis : 0,
+                    threshold, service.getRates(), publishTimes);
+            service.subscribeToRateChanges(all[i], threshold);
+        }
+
+        long maxRefreshNanos = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < refreshes; i++) {
+            long refreshStart = System.nanoTime();
+            // La actualización inicial del constructor es la número 1
+            publishTimes[i + 2] = refreshStart;
+            service.fetchLatestRates();
+            maxRefreshNanos = Math.max(maxRefreshNanos, System.nanoTime() - refreshStart);
+        }
+        long publishNanos = System.nanoTime() - start;
+
+        service.close();
+        boolean drained = completed.await(5, TimeUnit.MINUTES);
+        long totalNanos = System.nanoTime() - start;
+
+        Map<String, Double> finalRates = service.getRates();
+        for (CountingSubscriber subscriber : all) {
+            if (subscriber.isUpToDate(finalRates)) {
+                subscriber.stats.upToDate.incrementAndGet();
+            }
+        }
+
+        System.out.println("Suscriptores:            " + subscribers + " (lentos: " + slow.subscribers
+                + ", retardo " + slowDelayMillis + " ms)");
+        System.out.println("Actualizaciones:         " + refreshes);
+        System.out.printf("Tiempo de publicación:   %.1f ms (%.3f ms por actualización, máx %.3f ms)%n",
+                publishNanos / 1e6, publishNanos / 1e6 / refreshes, maxRefreshNanos / 1e6);
+        System.out.printf("Tiempo hasta vaciar:     %.1f ms%s%n", totalNanos / 1e6, drained ? "" : " (incompleto)");
+        System.out.println("Cambios reemplazados:    " + service.getConflatedRateChanges() + " (total)");
+        fast.print("Rápidos");
+        slow.print("Lentos");
+    }
+
+    /**
+     * Métricas acumuladas de un grupo de suscriptores.
+     */
+    private static class GroupStats {
+        private int subscribers;
+        private final LongAdder delivered = new LongAdder();
+        private final LongAdder latencySum = new LongAdder();
+        private final LongAccumulator maxLatency = new LongAccumulator(Math::max, 0);
+        private final AtomicInteger upToDate = new AtomicInteger();
+
+        void print(String name) {
+            long count = delivered.sum();
+            System.out.printf("%-8s entregados %d, latencia media %.3f ms, máx %.3f ms, al día %d de %d%n",
+                    name + ":", count, count == 0 ? 0 : latencySum.sum() / 1e6 / count,
+                    maxLatency.get() / 1e6, upToDate.get(), subscribers);
+        }
+    }
+
+    /**
+     * Cliente que genera tasas con un paseo aleatorio en cada solicitud.
+     */
+    private static class RandomWalkClient extends ExchangeRateClient {
+        private final Random random;
+        private final Map<String, Double> rates;
+        private int updates;
+
+        RandomWalkClient(long seed) {
+            this.random = new Random(seed);
+            this.rates = new HashMap<>();
+            for (Currency currency : Currency.values()) {
+                rates.put(currency.getCode(), 1 + random.nextDouble() * 1000);
+            }
+        }
+
+        @Override
+        public ExchangeRateResponse getLatestRates() {
+            for (Map.Entry<String, Double> entry : rates.entrySet()) {
+                entry.setValue(entry.getValue() * (1 + random.nextGaussian() * 0.01));
+            }
+
+            ExchangeRateResponse response = new ExchangeRateResponse();
+            response.setConversion_rates(new HashMap<>(rates));
+            response.setTime_last_update_unix(++updates);
+            response.setTime_last_update_utc(Integer.toString(updates));
+            return response;
+        }
+    }
+
+    private static class CountingSubscriber implements Flow.Subscriber<RateChange> {
+        private final GroupStats stats;
+        private final CountDownLatch completed;
+        private final long delayMillis;
+        private final double threshold;
+        private final long[] publishTimes;
+        private final Map<Currency, Double> lastRates;
+
+        CountingSubscriber(GroupStats stats, CountDownLatch completed, long delayMillis, double threshold,
+                           Map<String, Double> initialRates, long[] publishTimes) {
+            this.stats = stats;
+            this.completed = completed;
+            this.delayMillis = delayMillis;
+            this.threshold = threshold;
+            this.publishTimes = publishTimes;
+            this.lastRates = new EnumMap<>(Currency.class);
+            for (Map.Entry<String, Double> entry : initialRates.entrySet()) {
+                lastRates.put(Currency.getByCode(entry.getKey()), entry.getValue());
+            }
+            stats.subscribers++;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(RateChange change) {
+            long latency = System.nanoTime() - publishTimes[Integer.parseInt(change.getLastUpdated())];
+            stats.delivered.increment();
+            stats.latencySum.add(latency);
+            stats.maxLatency.accumulate(latency);
+            lastRates.put(change.getCurrency(), change.getCurrentRate());
+
+            if (delayMillis > 0) {
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        /**
+         * Indica si la última tasa recibida de cada moneda está dentro del umbral de la tasa final.
+         */
+        boolean isUpToDate(Map<String, Double> finalRates) {
+            for (Map.Entry<Currency, Double> entry : lastRates.entrySet()) {
+                double finalRate = finalRates.get(entry.getKey().getCode());
+                if (Math.abs(finalRate - entry.getValue()) / entry.getValue() > threshold) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            completed.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            completed.countDown();
+        }
+    }
+}
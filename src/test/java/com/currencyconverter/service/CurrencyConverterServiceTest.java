@@ -0,0 +1,455 @@
+package com.currencyconverter.service;
+
+import com.currencyconverter.api.ExchangeRateClient;
+import com.currencyconverter.model.Currency;
+import com.currencyconverter.model.ExchangeRateResponse;
+import com.currencyconverter.model.RateChange;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CurrencyConverterServiceTest {
+    private CurrencyConverterService service;
+
+    @AfterEach
+    void tearDown() {
+        if (service != null) {
+            service.close();
+        }
+    }
+
+    @Test
+    void diffRatesIncludesOnlyChangedCurrencies() {
+        Map<String, Double> previous = rates(1000.0, 5.0);
+        Map<String, Double> current = rates(1010.0, 5.0);
+
+        List<RateChange> changes = CurrencyConverterService.diffRates(previous, current, "t2");
+
+        assertEquals(1, changes.size());
+        RateChange change = changes.get(0);
+        assertEquals(Currency.ARS, change.getCurrency());
+        assertEquals(1000.0, change.getPreviousRate());
+        assertEquals(1010.0, change.getCurrentRate());
+        assertEquals(0.01, change.getRelativeChange(), 1e-12);
+        assertEquals("t2", change.getLastUpdated());
+    }
+
+    @Test
+    void diffRatesPublishesMissingPreviousRatesAsInitialValues() {
+        List<RateChange> changes = CurrencyConverterService.diffRates(new HashMap<>(), rates(1000.0, 5.0), "t1");
+
+        assertEquals(2, changes.size());
+        for (RateChange change : changes) {
+            assertTrue(change.isInitial());
+            assertEquals(Double.POSITIVE_INFINITY, change.getRelativeChange());
+        }
+    }
+
+    @Test
+    void diffRatesIgnoresCurrenciesMissingFromCurrentRates() {
+        Map<String, Double> current = new HashMap<>();
+        current.put("ARS", 1000.0);
+
+        List<RateChange> changes = CurrencyConverterService.diffRates(rates(1000.0, 5.0), current, "t2");
+
+        assertTrue(changes.isEmpty());
+    }
+
+    @Test
+    void thresholdFiltersChangesBeforeTheyReachTheBuffer() throws InterruptedException {
+        FakeExchangeRateClient client = new FakeExchangeRateClient();
+        client.enqueue(rates(1000.0, 5.0), "t0");
+        service = new CurrencyConverterService(client);
+
+        CollectingSubscriber subscriber = new CollectingSubscriber(0);
+        service.subscribeToRateChanges(subscriber, 0.05);
+        subscriber.awaitSubscription();
+
+        // Más movimientos pequeños que el tamaño del búfer, sin demanda del suscriptor
+        double ars = 1000.0;
+        for (int i = 1; i <= 200; i++) {
+            ars += 0.1;
+            client.enqueue(rates(ars, 5.0), "t" + i);
+            assertTrue(service.fetchLatestRates());
+        }
+        client.enqueue(rates(ars, 5.5), "big");
+        assertTrue(service.fetchLatestRates());
+
+        subscriber.request(Long.MAX_VALUE);
+        service.close();
+        List<RateChange> received = subscriber.awaitCompletion();
+
+        assertEquals(1, received.size());
+        assertEquals(Currency.BRL, received.get(0).getCurrency());
+        assertEquals("big", received.get(0).getLastUpdated());
+        assertEquals(0, service.getConflatedRateChanges());
+    }
+
+    @Test
+    void smallMovesAreDeliveredOnceTheyAccumulatePastTheThreshold() throws InterruptedException {
+        FakeExchangeRateClient client = new FakeExchangeRateClient();
+        client.enqueue(rates(1000.0, 5.0), "t0");
+        service = new CurrencyConverterService(client);
+
+        CollectingSubscriber subscriber = new CollectingSubscriber(Long.MAX_VALUE);
+        service.subscribeToRateChanges(subscriber, 0.05);
+
+        double ars = 1000.0;
+        for (int i = 1; i <= 30; i++) {
+            ars *= 1.01;
+            client.enqueue(rates(ars, 5.0), "t" + i);
+            assertTrue(service.fetchLatestRates());
+        }
+        service.close();
+        List<RateChange> received = subscriber.awaitCompletion();
+
+        assertTrue(received.size() >= 1);
+        double lastDelivered = 1000.0;
+        for (RateChange change : received) {
+            assertEquals(Currency.ARS, change.getCurrency());
+            assertEquals(lastDelivered, change.getPreviousRate());
+            assertTrue(change.getRelativeChange() >= 0.05);
+            lastDelivered = change.getCurrentRate();
+        }
+        assertTrue(Math.abs(ars - lastDelivered) / lastDelivered < 0.05);
+    }
+
+    @Test
+    void slowSubscriberDoesNotHoldBackFastOne() throws InterruptedException {
+        FakeExchangeRateClient client = new FakeExchangeRateClient();
+        client.enqueue(rates(1000.0, 5.0), "t0");
+        service = new CurrencyConverterService(client);
+
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingSubscriber slow = new BlockingSubscriber(release);
+        CollectingSubscriber fast = new CollectingSubscriber(Long.MAX_VALUE);
+        service.subscribeToRateChanges(slow);
+        service.subscribeToRateChanges(fast);
+
+        double ars = 1000.0;
+        for (int i = 1; i <= 100; i++) {
+            ars += 1;
+            client.enqueue(rates(ars, 5.0), "t" + i);
+            assertTrue(service.fetchLatestRates());
+        }
+
+        // El suscriptor rápido llega a la última tasa mientras el lento sigue bloqueado
+        fast.awaitRate(Currency.ARS, ars);
+        assertEquals(1, release.getCount());
+
+        release.countDown();
+        service.close();
+        List<RateChange> slowReceived = slow.awaitCompletion();
+
+        assertTrue(slowReceived.size() < 100);
+        assertEquals(ars, slowReceived.get(slowReceived.size() - 1).getCurrentRate());
+        assertTrue(service.getConflatedRateChanges() > 0);
+    }
+
+    @Test
+    void closeWithBoundedDemandDeliversPendingChangesBeforeCompleting() throws InterruptedException {
+        FakeExchangeRateClient client = new FakeExchangeRateClient();
+        client.enqueue(rates(1000.0, 5.0), "t0");
+        service = new CurrencyConverterService(client);
+
+        CollectingSubscriber subscriber = new CollectingSubscriber(1);
+        service.subscribeToRateChanges(subscriber);
+
+        double ars = 1000.0;
+        double brl = 5.0;
+        for (int i = 1; i <= 5; i++) {
+            ars += 10;
+            brl += 0.1;
+            client.enqueue(rates(ars, brl), "t" + i);
+            assertTrue(service.fetchLatestRates());
+        }
+        service.close();
+        assertEquals(1, subscriber.completed.getCount());
+
+        subscriber.request(10);
+        List<RateChange> received = subscriber.awaitCompletion();
+
+        Map<Currency, Double> lastRates = new HashMap<>();
+        for (RateChange change : received) {
+            lastRates.put(change.getCurrency(), change.getCurrentRate());
+        }
+        assertEquals(ars, lastRates.get(Currency.ARS));
+        assertEquals(brl, lastRates.get(Currency.BRL));
+        awaitNoSubscriptions();
+    }
+
+    @Test
+    void cancelRemovesTheSubscription() throws InterruptedException {
+        service = new CurrencyConverterService(new FakeExchangeRateClient());
+        CollectingSubscriber subscriber = new CollectingSubscriber(0);
+        service.subscribeToRateChanges(subscriber);
+        subscriber.awaitSubscription();
+        assertEquals(1, service.getSubscriptionCount());
+
+        subscriber.subscription.cancel();
+
+        assertEquals(0, service.getSubscriptionCount());
+    }
+
+    @Test
+    void olderResponseFinishingLastDoesNotOverwriteNewerRates() throws Exception {
+        FakeExchangeRateClient client = new FakeExchangeRateClient();
+        client.enqueue(rates(1000.0, 5.0), "t0");
+        service = new CurrencyConverterService(client);
+
+        CollectingSubscriber subscriber = new CollectingSubscriber(Long.MAX_VALUE);
+        service.subscribeToRateChanges(subscriber);
+
+        CountDownLatch gate = new CountDownLatch(1);
+        ExchangeRateResponse older = client.enqueue(rates(1100.0, 5.0), "older");
+        client.gate(older, gate);
+        client.enqueue(rates(1200.0, 5.0), "newer");
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Boolean> slowRefresh = executor.submit(service::fetchLatestRates);
+            // La primera solicitud toma la respuesta antigua y queda esperando en la compuerta
+            while (client.pending() > 1) {
+                Thread.onSpinWait();
+            }
+            assertTrue(service.fetchLatestRates());
+            gate.countDown();
+            assertTrue(slowRefresh.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals("newer", service.getLastUpdated());
+        assertEquals(1200.0, service.getRates().get("ARS"));
+
+        service.close();
+        List<RateChange> received = subscriber.awaitCompletion();
+        assertEquals(1, received.size());
+        assertEquals(1000.0, received.get(0).getPreviousRate());
+        assertEquals(1200.0, received.get(0).getCurrentRate());
+    }
+
+    @Test
+    void failedInitialFetchPublishesInitialValuesOnNextRefresh() throws InterruptedException {
+        FakeExchangeRateClient client = new FakeExchangeRateClient();
+        service = new CurrencyConverterService(client);
+        assertTrue(service.getRates().isEmpty());
+
+        CollectingSubscriber subscriber = new CollectingSubscriber(Long.MAX_VALUE);
+        service.subscribeToRateChanges(subscriber);
+
+        client.enqueue(rates(1000.0, 5.0), "t1");
+        assertTrue(service.fetchLatestRates());
+
+        for (int i = 0; i < 2; i++) {
+            RateChange change = subscriber.poll();
+            assertTrue(change.isInitial());
+            assertEquals("t1", change.getLastUpdated());
+        }
+        assertEquals("t1", service.getLastUpdated());
+    }
+
+    @Test
+    void closeCompletesSubscribersAndRejectsNewOnes() throws InterruptedException {
+        service = new CurrencyConverterService(new FakeExchangeRateClient());
+        CollectingSubscriber subscriber = new CollectingSubscriber(Long.MAX_VALUE);
+        service.subscribeToRateChanges(subscriber);
+
+        service.close();
+
+        assertTrue(subscriber.completed.await(5, TimeUnit.SECONDS));
+        assertThrows(IllegalStateException.class,
+                () -> service.subscribeToRateChanges(new CollectingSubscriber(0)));
+    }
+
+    @Test
+    void invalidThresholdsAreRejected() {
+        service = new CurrencyConverterService(new FakeExchangeRateClient());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> service.subscribeToRateChanges(new CollectingSubscriber(0), -0.1));
+        assertThrows(IllegalArgumentException.class,
+                () -> service.subscribeToRateChanges(new CollectingSubscriber(0), Double.NaN));
+        assertThrows(IllegalArgumentException.class,
+                () -> service.subscribeToRateChanges(new CollectingSubscriber(0), Double.POSITIVE_INFINITY));
+        service.subscribeToRateChanges(new CollectingSubscriber(0), -0.0);
+        assertEquals(1, service.getSubscriptionCount());
+    }
+
+    /**
+     * Espera a que las suscripciones terminadas se retiren del servicio.
+     */
+    private void awaitNoSubscriptions() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (service.getSubscriptionCount() > 0) {
+            assertTrue(System.nanoTime() < deadline, "Quedaron suscripciones activas");
+            Thread.sleep(1);
+        }
+    }
+
+    private static Map<String, Double> rates(double ars, double brl) {
+        Map<String, Double> rates = new HashMap<>();
+        rates.put("ARS", ars);
+        rates.put("BRL", brl);
+        rates.put("EUR", 0.9);
+        return rates;
+    }
+
+    /**
+     * Cliente que devuelve respuestas encoladas en lugar de llamar a la API.
+     */
+    private static class FakeExchangeRateClient extends ExchangeRateClient {
+        private final Queue<ExchangeRateResponse> responses = new ArrayDeque<>();
+        private final Map<ExchangeRateResponse, CountDownLatch> gates = new HashMap<>();
+        private long nextUnix = 1;
+
+        synchronized ExchangeRateResponse enqueue(Map<String, Double> rates, String lastUpdated) {
+            ExchangeRateResponse response = new ExchangeRateResponse();
+            response.setConversion_rates(rates);
+            response.setTime_last_update_utc(lastUpdated);
+            response.setTime_last_update_unix(nextUnix++);
+            responses.add(response);
+            return response;
+        }
+
+        /**
+         * Hace que la solicitud que obtenga esta respuesta espere hasta que se abra la compuerta.
+         */
+        synchronized void gate(ExchangeRateResponse response, CountDownLatch gate) {
+            gates.put(response, gate);
+        }
+
+        synchronized int pending() {
+            return responses.size();
+        }
+
+        @Override
+        public ExchangeRateResponse getLatestRates() {
+            ExchangeRateResponse response;
+            CountDownLatch gate;
+            synchronized (this) {
+                response = responses.poll();
+                gate = gates.get(response);
+            }
+            if (gate != null) {
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return response;
+        }
+    }
+
+    private static class CollectingSubscriber implements Flow.Subscriber<RateChange> {
+        private final long initialDemand;
+        private final BlockingQueue<RateChange> received = new LinkedBlockingQueue<>();
+        private final CountDownLatch subscribed = new CountDownLatch(1);
+        private final CountDownLatch completed = new CountDownLatch(1);
+        private volatile Flow.Subscription subscription;
+
+        CollectingSubscriber(long initialDemand) {
+            this.initialDemand = initialDemand;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (initialDemand > 0) {
+                subscription.request(initialDemand);
+            }
+            subscribed.countDown();
+        }
+
+        @Override
+        public void onNext(RateChange change) {
+            received.add(change);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+
+        @Override
+        public void onComplete() {
+            completed.countDown();
+        }
+
+        void awaitSubscription() throws InterruptedException {
+            assertTrue(subscribed.await(5, TimeUnit.SECONDS));
+        }
+
+        void request(long n) {
+            subscription.request(n);
+        }
+
+        RateChange poll() throws InterruptedException {
+            RateChange change = received.poll(5, TimeUnit.SECONDS);
+            assertTrue(change != null, "No se recibió ningún cambio");
+            return change;
+        }
+
+        /**
+         * Espera onComplete y devuelve los cambios aún no consumidos con poll().
+         */
+        List<RateChange> awaitCompletion() throws InterruptedException {
+            assertTrue(completed.await(5, TimeUnit.SECONDS), "El suscriptor no se completó");
+            List<RateChange> changes = new ArrayList<>();
+            received.drainTo(changes);
+            return changes;
+        }
+
+        /**
+         * Consume cambios hasta recibir la tasa indicada para la moneda.
+         */
+        void awaitRate(Currency currency, double rate) throws InterruptedException {
+            while (true) {
+                RateChange change = poll();
+                if (change.getCurrency() == currency && change.getCurrentRate() == rate) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Suscriptor cuyo onNext queda bloqueado hasta que se abre la compuerta.
+     */
+    private static class BlockingSubscriber extends CollectingSubscriber {
+        private final CountDownLatch release;
+
+        BlockingSubscriber(CountDownLatch release) {
+            super(Long.MAX_VALUE);
+            this.release = release;
+        }
+
+        @Override
+        public void onNext(RateChange change) {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            super.onNext(change);
+        }
+    }
+}